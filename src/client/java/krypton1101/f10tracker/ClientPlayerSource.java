@@ -0,0 +1,45 @@
+package krypton1101.f10tracker;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.server.integrated.IntegratedServer;
+
+/**
+ * Samples the local player of the running Minecraft client
+ */
+public class ClientPlayerSource implements PlayerSource {
+    private final MinecraftClient client;
+    
+    public ClientPlayerSource(MinecraftClient client) {
+        this.client = client;
+    }
+    
+    @Override
+    public PlayerData sample(long timestamp) {
+        ClientPlayerEntity player = client.player;
+        if (player == null) {
+            return null;
+        }
+        return new PlayerData(timestamp, player.getPos(), player.getVelocity(), player.getYaw(), player.getPitch(), player.getUuid());
+    }
+    
+    @Override
+    public String getDimension() {
+        ClientPlayerEntity player = client.player;
+        return player == null ? null : player.getWorld().getRegistryKey().getValue().toString();
+    }
+    
+    @Override
+    public String getWorldId() {
+        String worldId = "unknown";
+        ServerInfo serverInfo = client.getCurrentServerEntry();
+        IntegratedServer integratedServer = client.getServer();
+        if (serverInfo != null) {
+            worldId = serverInfo.address;
+        } else if (integratedServer != null) {
+            worldId = integratedServer.getSaveProperties().getLevelName();
+        }
+        return worldId.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -1,18 +1,24 @@
 package krypton1101.f10tracker;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.option.KeyBinding;
 import net.minecraft.client.util.InputUtil;
+import net.minecraft.client.world.ClientWorld;
 import org.lwjgl.glfw.GLFW;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class F10trackerClient implements ClientModInitializer {
 	private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-Client");
+	private static final long INIT_BUDGET_MICROS = 1000;
 	
+	private static TrackerExecutor executor;
+	private static TrackerNotifications notifications;
 	private static PositionLogger positionLogger;
 	private static KeyBinding startLoggingKey;
 	private static KeyBinding stopLoggingKey;
@@ -20,11 +26,17 @@ public class F10trackerClient implements ClientModInitializer {
 	private static KeyBinding connectWebSocketKey;
 	private static KeyBinding disconnectWebSocketKey;
 	private static KeyBinding toggleWebSocketKey;
+	private static ClientWorld lastWorld;
 	
 	@Override
 	public void onInitializeClient() {
-		// Initialize position logger
-		positionLogger = new PositionLogger(MinecraftClient.getInstance());
+		long startNanos = System.nanoTime();
+		
+		// Initialize the executor that owns all tracker threads, then the position logger.
+		// Both are lazy: no thread is started and no file is touched until the client has started.
+		executor = new TrackerExecutor();
+		notifications = new TrackerNotifications();
+		positionLogger = new PositionLogger(MinecraftClient.getInstance(), executor, notifications);
 		
 		// Register key bindings
 		registerKeyBindings();
@@ -32,7 +44,17 @@ public class F10trackerClient implements ClientModInitializer {
 		// Register tick event for handling key presses
 		ClientTickEvents.END_CLIENT_TICK.register(this::onClientTick);
 		
-		LOGGER.info("F10Tracker client initialized with position logging capabilities");
+		// Bind sessions to joining and leaving worlds and release all threads when the client stops
+		ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> onJoin(client));
+		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> onDisconnect());
+		ClientLifecycleEvents.CLIENT_STARTED.register(client -> positionLogger.preload());
+		ClientLifecycleEvents.CLIENT_STOPPING.register(client -> onClientStopping());
+		
+		long initMicros = (System.nanoTime() - startNanos) / 1000;
+		if (initMicros > INIT_BUDGET_MICROS) {
+			LOGGER.warn("F10Tracker client initialization took {}us, over its {}us budget", initMicros, INIT_BUDGET_MICROS);
+		}
+		LOGGER.info("F10Tracker client initialized with position logging capabilities in {}us", initMicros);
 	}
 	
 	private void registerKeyBindings() {
@@ -80,6 +102,17 @@ public class F10trackerClient implements ClientModInitializer {
 	}
 	
 	private void onClientTick(MinecraftClient client) {
+		// Show queued tracker status messages on the client thread
+		notifications.drain(client);
+		
+		// Write out the samples of the previous dimension when the world changes
+		if (client.world != lastWorld) {
+			if (lastWorld != null && client.world != null) {
+				positionLogger.flush();
+			}
+			lastWorld = client.world;
+		}
+		
 		if (client.player == null) return;
 		
 		// Handle key presses
@@ -143,6 +176,35 @@ public class F10trackerClient implements ClientModInitializer {
 		}
 	}
 	
+	private void onJoin(MinecraftClient client) {
+		// Connecting is deferred until a world is joined so a slow server never delays client startup
+		positionLogger.connectWebSocketIfEnabled();
+		positionLogger.startLiveStreamIfEnabled();
+		
+		if (positionLogger.getConfig().isAutoStartEnabled() && !positionLogger.isLogging()) {
+			positionLogger.startLogging(positionLogger.getConfig().getLogInterval());
+			if (client.player != null) {
+				client.player.sendMessage(net.minecraft.text.Text.literal("Started position logging"), false);
+			}
+		}
+	}
+	
+	private void onDisconnect() {
+		if (positionLogger.isLogging()) {
+			positionLogger.stopLogging();
+		}
+		positionLogger.closeWebSocket();
+	}
+	
+	private void onClientStopping() {
+		positionLogger.shutdown();
+		executor.close();
+	}
+	
+	public static TrackerNotifications getNotifications() {
+		return notifications;
+	}
+	
 	public static PositionLogger getPositionLogger() {
 		return positionLogger;
 	}
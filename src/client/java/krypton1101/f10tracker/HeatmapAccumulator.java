@@ -0,0 +1,177 @@
+package krypton1101.f10tracker;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates a sparse density grid of logged positions per world and dimension, one cell per chunk.
+ * Counts are kept in primitive long-keyed maps and persisted as compact snapshots that
+ * already contain the totals of earlier sessions in the same world.
+ */
+public class HeatmapAccumulator {
+    private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-Heatmap");
+    private static final String HEATMAP_FILE_EXTENSION = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x4631304D; // "F10M"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Supplier<String> directory;
+    
+    // Keyed by grid key, see getGridKey
+    private final Map<String, Long2IntOpenHashMap> grids = new HashMap<>();
+    private final Set<String> dirtyGrids = new HashSet<>();
+    // Grids whose unreadable snapshot could not be moved aside, never overwritten
+    private final Set<String> protectedGrids = new HashSet<>();
+    
+    /**
+     * Create an accumulator keeping its snapshots in the given directory, which is only looked up once grids are used
+     */
+    public HeatmapAccumulator(Supplier<String> directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Count one sample at the given block coordinates in the given world and dimension
+     */
+    public synchronized void record(String worldId, String dimension, double x, double z) {
+        String key = getGridKey(worldId, dimension);
+        Long2IntOpenHashMap grid = grids.computeIfAbsent(key, this::loadGrid);
+        grid.addTo(ChunkPos.toLong(MathHelper.floor(x) >> 4, MathHelper.floor(z) >> 4), 1);
+        dirtyGrids.add(key);
+    }
+
+    /**
+     * Write a snapshot for every grid that changed since the last snapshot
+     */
+    public synchronized void snapshot() {
+        if (dirtyGrids.isEmpty()) {
+            return;
+        }
+
+        for (String key : dirtyGrids) {
+            if (protectedGrids.contains(key)) {
+                continue;
+            }
+            Path file = getSnapshotFile(key);
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(file.getParent());
+                writeSnapshot(grids.get(key), tempFile);
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOGGER.error("Failed to write heatmap snapshot for {}", key, e);
+            }
+        }
+
+        LOGGER.debug("Wrote {} heatmap snapshot(s)", dirtyGrids.size());
+        dirtyGrids.clear();
+    }
+
+    /**
+     * Get a copy of the cell counts for a dimension of a world, keyed by packed chunk position
+     */
+    public synchronized Long2IntOpenHashMap copyGrid(String worldId, String dimension) {
+        Long2IntOpenHashMap grid = grids.get(getGridKey(worldId, dimension));
+        return grid == null ? new Long2IntOpenHashMap() : new Long2IntOpenHashMap(grid);
+    }
+
+    /**
+     * Add the cell counts of a snapshot file into the given grid
+     */
+    public static void mergeSnapshot(Path file, Long2IntOpenHashMap into) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a heatmap snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported heatmap snapshot version " + version + ": " + file);
+            }
+
+            int cells = in.readInt();
+            into.ensureCapacity(into.size() + cells);
+            for (int i = 0; i < cells; i++) {
+                into.addTo(in.readLong(), in.readInt());
+            }
+        }
+    }
+
+    /**
+     * Load the persisted totals for a grid, or start an empty grid
+     */
+    private Long2IntOpenHashMap loadGrid(String key) {
+        Long2IntOpenHashMap grid = new Long2IntOpenHashMap();
+        Path file = getSnapshotFile(key);
+        if (!Files.exists(file)) {
+            return grid;
+        }
+
+        try {
+            mergeSnapshot(file, grid);
+            LOGGER.info("Loaded heatmap for {} with {} cells", key, grid.size());
+            return grid;
+        } catch (IOException e) {
+            LOGGER.error("Failed to load heatmap snapshot for {}", key, e);
+        }
+
+        // Keep the unreadable totals for manual recovery instead of replacing them with this session's counts
+        Path corruptFile = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.move(file, corruptFile);
+            LOGGER.warn("Moved unreadable heatmap snapshot to {}, starting a new grid", corruptFile);
+        } catch (IOException e) {
+            LOGGER.error("Failed to move unreadable heatmap snapshot {}, it will not be overwritten", file, e);
+            protectedGrids.add(key);
+        }
+        // A partially merged grid would make the next snapshot hold wrong totals
+        return new Long2IntOpenHashMap();
+    }
+
+    /**
+     * Write a grid as a header followed by (chunk key, count) pairs
+     */
+    private static void writeSnapshot(Long2IntOpenHashMap grid, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(grid.size());
+            for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(grid)) {
+                out.writeLong(entry.getLongKey());
+                out.writeInt(entry.getIntValue());
+            }
+        }
+    }
+
+    /**
+     * Combine a file name safe world ID and a dimension ID into a grid key of the form world/dimension
+     */
+    private static String getGridKey(String worldId, String dimension) {
+        return worldId + "/" + dimension.replace(':', '_').replace('/', '_');
+    }
+
+    /**
+     * Snapshots live in one directory per world, one file per dimension
+     */
+    private Path getSnapshotFile(String key) {
+        return Paths.get(directory.get(), key + HEATMAP_FILE_EXTENSION);
+    }
+}
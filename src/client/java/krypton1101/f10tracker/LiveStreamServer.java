@@ -0,0 +1,357 @@
+package krypton1101.f10tracker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded localhost server streaming samples to local overlays and dashboards as Server-Sent Events.
+ * Each sample is encoded once into a shared read-only buffer, the capture path only hands that buffer
+ * to a broadcaster thread, and every subscriber writes it from its own bounded queue so a slow
+ * subscriber is evicted instead of holding up the others.
+ */
+public class LiveStreamServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-LiveStream");
+    private static final int MAX_CONNECTIONS = 32; // Including connections that have not sent their request yet
+    private static final int OUTBOX_CAPACITY = 64;
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 64;
+    private static final int MAX_REQUEST_BYTES = 8192;
+    private static final long REQUEST_TIMEOUT_MS = 5000;
+    private static final long KEEPALIVE_INTERVAL_MS = 15000;
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final byte[] KEEPALIVE = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FORBIDDEN = ("HTTP/1.1 403 Forbidden\r\n"
+            + "Content-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] METHOD_NOT_ALLOWED = ("HTTP/1.1 405 Method Not Allowed\r\n"
+            + "Allow: GET\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final TrackerScheduler executor;
+    private final BlockingQueue<ByteBuffer> outbox;
+    private final List<Subscriber> subscribers;
+    private final Set<Subscriber> connections;
+
+    private volatile ServerSocketChannel serverChannel;
+    private volatile byte[] responseHeader;
+    private volatile Set<String> allowedHosts;
+    private volatile boolean running = false;
+
+    public LiveStreamServer(TrackerScheduler executor) {
+        this.executor = executor;
+        this.outbox = new ArrayBlockingQueue<>(OUTBOX_CAPACITY);
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.connections = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Start listening on the given localhost port. Browser pages may only read the stream if they are served
+     * from the allowed origin, an empty origin allows none.
+     */
+    public synchronized boolean start(int port, String allowedOrigin) {
+        if (running) {
+            return true;
+        }
+        if (allowedOrigin.contains("\r") || allowedOrigin.contains("\n")) {
+            LOGGER.error("Invalid live stream allowed origin: {}", allowedOrigin);
+            return false;
+        }
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            int boundPort = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+            allowedHosts = Set.of("localhost:" + boundPort, "127.0.0.1:" + boundPort);
+        } catch (IOException e) {
+            LOGGER.error("Failed to start live stream server on port {}: {}", port, e.getMessage(), e);
+            closeQuietly(serverChannel);
+            serverChannel = null;
+            return false;
+        }
+
+        responseHeader = buildResponseHeader(allowedOrigin);
+        running = true;
+        ServerSocketChannel channel = serverChannel;
+        executor.executeIo(() -> acceptLoop(channel));
+        executor.executeIo(() -> broadcastLoop(channel));
+        LOGGER.info("Live stream server listening on http://localhost:{}/", port);
+        return true;
+    }
+
+    /**
+     * Encode a sample once and hand it to the broadcaster. Does nothing without subscribers.
+     */
+    public void publish(PlayerData data) {
+        if (!running || subscribers.isEmpty()) {
+            return;
+        }
+
+        byte[] event = ("data: " + data.toJson() + "\n\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(event.length).put(event).flip().asReadOnlyBuffer();
+        if (!outbox.offer(buffer)) {
+            LOGGER.debug("Live stream broadcaster is behind, dropping sample");
+        }
+    }
+
+    /**
+     * Stop the server and close every connection, including those still sending their request
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        closeQuietly(serverChannel);
+        serverChannel = null;
+        for (Subscriber connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+        subscribers.clear();
+        outbox.clear();
+        LOGGER.info("Live stream server stopped");
+    }
+
+    /**
+     * Check if the server is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get the number of connected subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void acceptLoop(ServerSocketChannel channel) {
+        while (channel.isOpen()) {
+            try {
+                SocketChannel socket = channel.accept();
+                if (connections.size() >= MAX_CONNECTIONS) {
+                    LOGGER.warn("Rejecting live stream connection, limit of {} reached", MAX_CONNECTIONS);
+                    closeQuietly(socket);
+                    continue;
+                }
+                Subscriber subscriber = new Subscriber(socket);
+                connections.add(subscriber);
+                if (!channel.isOpen()) {
+                    // Closed while accepting, close may already have gone over the connections
+                    evict(subscriber);
+                    return;
+                }
+                // Idle connections must not hold a slot, close those that send no request in time
+                subscriber.requestTimeout = executor.schedule(subscriber::closeIfNoRequest, REQUEST_TIMEOUT_MS);
+                executor.executeIo(subscriber::run);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.error("Failed to accept live stream subscriber: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Fan out encoded samples to every subscriber queue, off the capture path
+     */
+    private void broadcastLoop(ServerSocketChannel channel) {
+        // Tied to its server channel so a quick restart never leaves two broadcasters running
+        while (channel.isOpen()) {
+            try {
+                ByteBuffer buffer = outbox.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (buffer == null) {
+                    continue;
+                }
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.queue.offer(buffer)) {
+                        LOGGER.info("Evicting slow live stream subscriber {}", subscriber.address);
+                        evict(subscriber);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Only answer GET requests addressed to this server by its loopback name and port, so a page that rebinds
+     * its own domain to 127.0.0.1 cannot read the stream. Returns the error response, or null to allow it.
+     */
+    private byte[] checkRequest(String head) {
+        String[] lines = head.split("\r\n");
+        if (!lines[0].startsWith("GET ")) {
+            return METHOD_NOT_ALLOWED;
+        }
+
+        String host = null;
+        for (int i = 1; i < lines.length && !lines[i].isEmpty(); i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase("Host")) {
+                if (host != null) {
+                    // Proxies and browsers may disagree on which of several Host headers counts
+                    return FORBIDDEN;
+                }
+                host = lines[i].substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+            }
+        }
+        return host != null && allowedHosts.contains(host) ? null : FORBIDDEN;
+    }
+
+    private void evict(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        connections.remove(subscriber);
+        subscriber.close();
+    }
+
+    private static byte[] buildResponseHeader(String allowedOrigin) {
+        StringBuilder header = new StringBuilder("HTTP/1.1 200 OK\r\n")
+                .append("Content-Type: text/event-stream\r\n")
+                .append("Cache-Control: no-cache\r\n")
+                .append("Connection: keep-alive\r\n");
+        if (!allowedOrigin.isEmpty()) {
+            header.append("Access-Control-Allow-Origin: ").append(allowedOrigin).append("\r\n");
+        }
+        return header.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close live stream channel: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * One connected client with its own queue of shared sample buffers, written on its own virtual thread
+     */
+    private class Subscriber {
+        private final SocketChannel channel;
+        private final BlockingQueue<ByteBuffer> queue;
+        private final String address;
+        private volatile boolean closed = false;
+        private volatile boolean requestRead = false;
+        private volatile ScheduledFuture<?> requestTimeout;
+
+        private Subscriber(SocketChannel channel) {
+            this.channel = channel;
+            this.queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_CAPACITY);
+            this.address = describe(channel);
+        }
+
+        private void run() {
+            try {
+                String head = readRequest();
+                requestRead = true;
+                ScheduledFuture<?> timeout = requestTimeout;
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                byte[] rejection = checkRequest(head);
+                if (rejection != null) {
+                    LOGGER.warn("Rejecting live stream request from {}: {}", address, head.substring(0, head.indexOf("\r\n")));
+                    writeFully(ByteBuffer.wrap(rejection));
+                    return;
+                }
+                writeFully(ByteBuffer.wrap(responseHeader));
+                subscribers.add(this);
+                LOGGER.info("Live stream subscriber connected: {}", address);
+
+                long lastWrite = System.currentTimeMillis();
+                while (running && !closed) {
+                    ByteBuffer buffer = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (buffer != null) {
+                        // Each subscriber gets its own position over the shared bytes, nothing is copied
+                        writeFully(buffer.duplicate());
+                        lastWrite = System.currentTimeMillis();
+                    } else if (System.currentTimeMillis() - lastWrite >= KEEPALIVE_INTERVAL_MS) {
+                        // Keepalive comments also reveal subscribers that went away without closing
+                        writeFully(ByteBuffer.wrap(KEEPALIVE));
+                        lastWrite = System.currentTimeMillis();
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Live stream subscriber {} disconnected: {}", address, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                evict(this);
+            }
+        }
+
+        /**
+         * Read the HTTP request head, any path is answered with the stream
+         */
+        private String readRequest() throws IOException {
+            ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+            while (request.hasRemaining()) {
+                if (channel.read(request) < 0) {
+                    throw new IOException("Connection closed before request was complete");
+                }
+                String head = new String(request.array(), 0, request.position(), StandardCharsets.US_ASCII);
+                int end = head.indexOf("\r\n\r\n");
+                if (end >= 0) {
+                    return head.substring(0, end + 2);
+                }
+            }
+            throw new IOException("Request header too large");
+        }
+
+        private void closeIfNoRequest() {
+            if (!requestRead && !closed) {
+                LOGGER.info("Closing live stream connection {}, no request within {}ms", address, REQUEST_TIMEOUT_MS);
+                // Closing the channel makes the blocked read fail, run then evicts the connection
+                close();
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            // A pending timeout would otherwise keep the scheduler from shutting down until it fires
+            ScheduledFuture<?> timeout = requestTimeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            closeQuietly(channel);
+        }
+    }
+
+    private static String describe(SocketChannel channel) {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+}
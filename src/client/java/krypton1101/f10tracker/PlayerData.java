@@ -47,6 +47,20 @@ public class PlayerData {
         return playerUuid;
     }
 
+    /**
+     * Convert to the JSON format sent to the tracking server and live stream subscribers
+     */
+    public String toJson() {
+        return String.format(
+            "{\"UUID\":\"%s\",\"timestamp\":%d,\"position\":{\"x\":%.6f,\"y\":%.6f,\"z\":%.6f},\"velocity\":{\"x\":%.6f,\"y\":%.6f,\"z\":%.6f},\"yaw\":%.3f,\"pitch\":%.3f}",
+            playerUuid,
+            timestamp,
+            position.x, position.y, position.z,
+            velocity.x, velocity.y, velocity.z,
+            yaw, pitch
+        );
+    }
+
     @Override
     public String toString() {
         return String.format("PlayerData{UUID=%s, timestamp=%d, pos=(%.3f,%.3f,%.3f), vel=(%.3f,%.3f,%.3f), yaw=%.1f, pitch=%.1f}",
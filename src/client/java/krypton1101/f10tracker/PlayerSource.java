@@ -0,0 +1,21 @@
+package krypton1101.f10tracker;
+
+/**
+ * Source of the player state sampled by PositionLogger
+ */
+public interface PlayerSource {
+    /**
+     * Capture the current player state, or null when there is no player to sample
+     */
+    PlayerData sample(long timestamp);
+    
+    /**
+     * Get the ID of the dimension the player is in, or null when there is no player
+     */
+    String getDimension();
+    
+    /**
+     * Get a file name safe identifier of the server or singleplayer world being played
+     */
+    String getWorldId();
+}
@@ -1,8 +1,6 @@
 package krypton1101.f10tracker;
 
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.network.ClientPlayerEntity;
-import net.minecraft.util.math.Vec3d;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,53 +9,113 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
 
 /**
  * Handles timed logging of player position and velocity data
  */
 public class PositionLogger {
     private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-PositionLogger");
-    private static final String LOG_DIR = "f10tracker_logs";
     private static final String LOG_FILE_PREFIX = "player_data_";
     private static final String LOG_FILE_EXTENSION = ".csv";
+    static final String CSV_HEADER = "timestamp,pos_x,pos_y,pos_z,vel_x,vel_y,vel_z,yaw,pitch\n";
+    private static final int MAX_BUFFERED_SAMPLES = 10000; // Only reached while flushes fail without a journal
+    private static final long MAX_FLUSH_RETRY_DELAY_MS = 300000; // 5 minutes
     
-    private final MinecraftClient client;
-    private ScheduledExecutorService scheduler;
+    private final PlayerSource playerSource;
+    private final Clock clock;
+    private final TrackerScheduler executor;
+    private final Supplier<TrackerConfig> configSource;
+    private final List<ScheduledFuture<?>> scheduledTasks;
     private final List<PlayerData> dataBuffer;
     private final Object bufferLock = new Object();
     private final WebSocketManager webSocketManager;
-    private final TrackerConfig config;
+    private final LiveStreamServer liveStreamServer;
+    private final HeatmapAccumulator heatmapAccumulator;
     
-    private boolean isLogging = false;
+    // Started by preload, or on first use if the client never called it
+    private volatile CompletableFuture<TrackerConfig> config;
+    private CompletableFuture<Void> journalRecovery;
+    
+    private volatile boolean isLogging = false;
     private long logIntervalMs = 1000; // Default 1 second interval
+    private volatile String currentWorldId;
+    private String currentSessionId;
     private String currentLogFile;
     
-    public PositionLogger(MinecraftClient client) {
-        this.client = client;
-        this.scheduler = Executors.newScheduledThreadPool(1);
+    // Only touched on the scheduler thread
+    private SessionJournal journal;
+    private boolean csvBehindJournal; // Set by a failed flush, the CSV is then caught up from the journal
+    private long flushRetryDelayMs;
+    private long nextFlushAttemptMs;
+    
+    public PositionLogger(MinecraftClient client, TrackerExecutor executor, TrackerNotifications notifications) {
+        this(new ClientPlayerSource(client), Clock.systemDefaultZone(), executor, TrackerConfig::new, notifications);
+    }
+    
+    /**
+     * Create a logger sampling the given source, timestamped by the given clock and driven by the given
+     * scheduler. The config source is called once, off the client thread, when the config is first needed.
+     */
+    public PositionLogger(PlayerSource playerSource, Clock clock, TrackerScheduler executor,
+                          Supplier<TrackerConfig> configSource, TrackerNotifications notifications) {
+        this.playerSource = playerSource;
+        this.clock = clock;
+        this.executor = executor;
+        this.configSource = configSource;
+        this.scheduledTasks = new ArrayList<>();
         this.dataBuffer = new ArrayList<>();
-        this.webSocketManager = new WebSocketManager(client);
-        this.config = new TrackerConfig();
-        this.currentLogFile = generateLogFileName();
-        
-        // Initialize WebSocket connection if enabled
-        if (config.isWebSocketEnabled()) {
-            webSocketManager.connect(config.getWebSocketServer());
+        this.webSocketManager = new WebSocketManager(notifications, executor);
+        this.liveStreamServer = new LiveStreamServer(executor);
+        this.heatmapAccumulator = new HeatmapAccumulator(() -> getConfig().getHeatmapDirectory());
+    }
+    
+    /**
+     * Start loading the config and recovering sessions left unfinished by a crash, off the client thread.
+     * Does nothing if already started.
+     */
+    public synchronized void preload() {
+        if (config != null) {
+            return;
+        }
+        CompletableFuture<TrackerConfig> loading = CompletableFuture.supplyAsync(configSource, executor::executeIo);
+        journalRecovery = loading.thenAcceptAsync(
+                trackerConfig -> SessionJournal.recoverAll(Paths.get(trackerConfig.getLogDirectory())), executor::executeIo);
+        config = loading;
+    }
+    
+    /**
+     * Connect to the configured WebSocket server if enabled and not already connected
+     */
+    public void connectWebSocketIfEnabled() {
+        TrackerConfig trackerConfig = getConfig();
+        if (trackerConfig.isWebSocketEnabled() && !webSocketManager.isConnected()) {
+            webSocketManager.setReconnectDelay(trackerConfig.getReconnectDelay());
+            webSocketManager.connect(trackerConfig.getWebSocketServer());
+        }
+    }
+    
+    /**
+     * Start the local live stream server if enabled and not already running
+     */
+    public void startLiveStreamIfEnabled() {
+        TrackerConfig trackerConfig = getConfig();
+        if (trackerConfig.isLiveStreamEnabled() && !liveStreamServer.isRunning()) {
+            liveStreamServer.start(trackerConfig.getLiveStreamPort(), trackerConfig.getLiveStreamAllowedOrigin());
         }
     }
     
     /**
      * Start logging player position and velocity at the specified interval
      */
-    public void startLogging(long intervalMs) {
+    public synchronized void startLogging(long intervalMs) {
         if (isLogging) {
             LOGGER.warn("Position logging is already active");
             return;
@@ -65,98 +123,267 @@ public class PositionLogger {
         
         this.logIntervalMs = intervalMs;
         this.isLogging = true;
-        this.currentLogFile = generateLogFileName();
+        this.currentWorldId = playerSource.getWorldId();
+        this.currentSessionId = generateSessionId();
+        this.currentLogFile = generateLogFileName(currentSessionId);
+        String logFile = currentLogFile;
+        preload();
+        CompletableFuture<Void> recovery = journalRecovery;
         
-        // Create a new scheduler if the current one has been shut down
-        if (scheduler.isShutdown()) {
-            LOGGER.info("Creating new scheduler as previous one was shut down");
-            // Create a new scheduler
-            scheduler = Executors.newScheduledThreadPool(1);
-        }
+        // Create log directory, write CSV header and open the journal on the scheduler thread, ahead of the first sample
+        executor.execute(() -> {
+            recovery.join();
+            createLogDirectory();
+            writeCSVHeader(logFile);
+            openJournal(logFile);
+        });
         
-        // Create log directory if it doesn't exist
-        createLogDirectory();
+        // Schedule periodic logging
+        scheduledTasks.add(executor.scheduleAtFixedRate(this::logCurrentPosition, 0, intervalMs));
         
-        // Write CSV header
-        writeCSVHeader();
+        // Schedule periodic flushes so the buffer and the journal stay small
+        long flushIntervalMs = getConfig().getFlushInterval();
+        scheduledTasks.add(executor.scheduleAtFixedRate(() -> flushIfDue(logFile), flushIntervalMs, flushIntervalMs));
         
-        // Schedule periodic logging
-        scheduler.scheduleAtFixedRate(this::logCurrentPosition, 0, intervalMs, TimeUnit.MILLISECONDS);
+        // Schedule periodic heatmap snapshots
+        if (getConfig().isHeatmapEnabled()) {
+            long snapshotIntervalMs = getConfig().getHeatmapSnapshotInterval();
+            scheduledTasks.add(executor.scheduleAtFixedRate(heatmapAccumulator::snapshot, snapshotIntervalMs, snapshotIntervalMs));
+        }
         
-        LOGGER.info("Started position logging with interval: {}ms", intervalMs);
+        LOGGER.info("Started position logging session {} with interval: {}ms", currentSessionId, intervalMs);
     }
     
     /**
      * Stop logging and flush any remaining data
      */
-    public void stopLogging() {
+    public synchronized void stopLogging() {
         if (!isLogging) {
             LOGGER.warn("Position logging is not active");
             return;
         }
         
         isLogging = false;
-        scheduler.shutdown();
+        for (ScheduledFuture<?> task : scheduledTasks) {
+            task.cancel(false);
+        }
+        scheduledTasks.clear();
         
-        // Flush remaining data
-        flushDataToFile();
+        // Flush remaining data on the scheduler thread, after any sample still being captured
+        String logFile = currentLogFile;
+        executor.execute(() -> {
+            boolean flushed = flushDataToFile(logFile);
+            if (!flushed) {
+                // The journal still holds these samples and is recovered into this session's file on the next startup
+                synchronized (bufferLock) {
+                    dataBuffer.clear();
+                }
+            }
+            closeJournal(flushed);
+            heatmapAccumulator.snapshot();
+        });
         
-        LOGGER.info("Stopped position logging. Data saved to: {}", currentLogFile);
+        LOGGER.info("Stopped position logging. Data saved to: {}", logFile);
+    }
+    
+    /**
+     * Write buffered data to the current log file without stopping the session
+     */
+    public synchronized void flush() {
+        if (!isLogging) {
+            return;
+        }
+        
+        String logFile = currentLogFile;
+        executor.execute(() -> flushDataToFile(logFile));
+    }
+    
+    /**
+     * Stop logging and close the WebSocket connection and live stream server before the executor shuts down
+     */
+    public synchronized void shutdown() {
+        if (isLogging) {
+            stopLogging();
+        }
+        webSocketManager.shutdown();
+        liveStreamServer.close();
     }
     
     /**
      * Log the current player position and velocity
      */
     private void logCurrentPosition() {
-        if (!isLogging || client.player == null) {
+        if (!isLogging) {
             return;
         }
         
-        ClientPlayerEntity player = client.player;
-        long timestamp = System.currentTimeMillis();
-
-        UUID playerUuid = player.getUuid();
-        Vec3d position = player.getPos();
-        Vec3d velocity = player.getVelocity();
-        float yaw = player.getYaw();
-        float pitch = player.getPitch();
+        PlayerData data = playerSource.sample(clock.millis());
+        if (data == null) {
+            return;
+        }
         
-        PlayerData data = new PlayerData(timestamp, position, velocity, yaw, pitch, playerUuid);
+        // Journal the sample before buffering it so a crash cannot lose it
+        if (journal != null) {
+            try {
+                journal.append(dataToCSV(data));
+            } catch (IOException e) {
+                LOGGER.error("Failed to append sample to session journal", e);
+            }
+        }
         
-        synchronized (bufferLock) {
-            dataBuffer.add(data);
+        // While the CSV is behind, the next successful flush copies every sample from the journal instead
+        if (!csvBehindJournal) {
+            synchronized (bufferLock) {
+                dataBuffer.add(data);
+            }
+        }
+        
+        // Bin into the heatmap if enabled
+        if (getConfig().isHeatmapEnabled()) {
+            String dimension = playerSource.getDimension();
+            if (dimension != null) {
+                heatmapAccumulator.record(currentWorldId, dimension, data.getPosition().x, data.getPosition().z);
+            }
         }
         
         // Send to WebSocket if enabled and connected
-        if (config.isWebSocketEnabled()) {
+        if (getConfig().isWebSocketEnabled()) {
             webSocketManager.sendPlayerData(data);
         }
         
+        // Hand to the local live stream, a no-op without subscribers
+        liveStreamServer.publish(data);
+        
         // Log to console for debugging
         LOGGER.debug("Logged position: {}", data);
     }
     
     /**
-     * Flush buffered data to file
+     * Periodic flush, skipped while backing off after a failed one
      */
-    private void flushDataToFile() {
+    private void flushIfDue(String logFile) {
+        if (clock.millis() >= nextFlushAttemptMs) {
+            flushDataToFile(logFile);
+        }
+    }
+    
+    /**
+     * Flush buffered data to file and checkpoint the journal. Returns false if the data could not be written.
+     */
+    private boolean flushDataToFile(String logFile) {
+        if (csvBehindJournal) {
+            return catchUpFromJournal();
+        }
+        
         List<PlayerData> dataToWrite;
         
         synchronized (bufferLock) {
             if (dataBuffer.isEmpty()) {
-                return;
+                return true;
             }
             dataToWrite = new ArrayList<>(dataBuffer);
             dataBuffer.clear();
         }
         
-        try (FileWriter writer = new FileWriter(currentLogFile, true)) {
+        try (FileWriter writer = new FileWriter(logFile, true)) {
             for (PlayerData data : dataToWrite) {
                 writer.write(dataToCSV(data) + "\n");
             }
         } catch (IOException e) {
             LOGGER.error("Failed to write position data to file", e);
+            if (journal != null) {
+                // The samples are still in the journal, so later flushes copy them from there and the buffer stays empty
+                csvBehindJournal = true;
+            } else {
+                // Keep the newest samples for the next flush
+                synchronized (bufferLock) {
+                    dataBuffer.addAll(0, dataToWrite);
+                    int excess = dataBuffer.size() - MAX_BUFFERED_SAMPLES;
+                    if (excess > 0) {
+                        dataBuffer.subList(0, excess).clear();
+                        LOGGER.warn("Dropped {} unwritten samples, the buffer is full", excess);
+                    }
+                }
+            }
+            backOffFlushes();
+            return false;
+        }
+        
+        checkpointJournal();
+        flushRetryDelayMs = 0;
+        return true;
+    }
+    
+    /**
+     * Copy the samples the CSV is missing from the journal after a failed flush
+     */
+    private boolean catchUpFromJournal() {
+        try {
+            int written = journal.replay();
+            LOGGER.info("Caught up {} samples from the session journal", written);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write position data to file", e);
+            backOffFlushes();
+            return false;
         }
+        
+        checkpointJournal();
+        csvBehindJournal = false;
+        flushRetryDelayMs = 0;
+        return true;
+    }
+    
+    /**
+     * Double the delay before the next periodic flush, starting from twice the flush interval
+     */
+    private void backOffFlushes() {
+        flushRetryDelayMs = Math.min(Math.max(flushRetryDelayMs, getConfig().getFlushInterval()) * 2, MAX_FLUSH_RETRY_DELAY_MS);
+        nextFlushAttemptMs = clock.millis() + flushRetryDelayMs;
+        LOGGER.warn("Retrying the flush in {}ms", flushRetryDelayMs);
+    }
+    
+    private void checkpointJournal() {
+        if (journal != null) {
+            try {
+                journal.checkpoint();
+            } catch (IOException e) {
+                LOGGER.error("Failed to checkpoint session journal", e);
+            }
+        }
+    }
+    
+    /**
+     * Open the write-ahead journal for a new session
+     */
+    private void openJournal(String logFile) {
+        closeJournal(false);
+        csvBehindJournal = false;
+        flushRetryDelayMs = 0;
+        nextFlushAttemptMs = 0;
+        try {
+            journal = SessionJournal.open(logFile);
+        } catch (IOException e) {
+            LOGGER.error("Failed to open session journal, samples will only be kept in memory", e);
+        }
+    }
+    
+    /**
+     * Close the journal, deleting it if the session has been fully written
+     */
+    private void closeJournal(boolean complete) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (complete) {
+                journal.complete();
+            } else {
+                journal.close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to close session journal", e);
+        }
+        journal = null;
     }
     
     /**
@@ -173,9 +400,9 @@ public class PositionLogger {
     /**
      * Write CSV header to the log file
      */
-    private void writeCSVHeader() {
-        try (FileWriter writer = new FileWriter(currentLogFile)) {
-            writer.write("timestamp,pos_x,pos_y,pos_z,vel_x,vel_y,vel_z,yaw,pitch\n");
+    private void writeCSVHeader(String logFile) {
+        try (FileWriter writer = new FileWriter(logFile)) {
+            writer.write(CSV_HEADER);
         } catch (IOException e) {
             LOGGER.error("Failed to write CSV header", e);
         }
@@ -186,7 +413,7 @@ public class PositionLogger {
      */
     private void createLogDirectory() {
         try {
-            Path logDir = Paths.get(LOG_DIR);
+            Path logDir = Paths.get(getConfig().getLogDirectory());
             if (!Files.exists(logDir)) {
                 Files.createDirectories(logDir);
                 LOGGER.info("Created log directory: {}", logDir.toAbsolutePath());
@@ -197,11 +424,18 @@ public class PositionLogger {
     }
     
     /**
-     * Generate a unique log file name with timestamp
+     * Generate a unique session ID from the current world or server and a timestamp
      */
-    private String generateLogFileName() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        return LOG_DIR + "/" + LOG_FILE_PREFIX + timestamp + LOG_FILE_EXTENSION;
+    private String generateSessionId() {
+        String timestamp = LocalDateTime.now(clock).format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        return currentWorldId + "_" + timestamp;
+    }
+    
+    /**
+     * Generate the log file name for a session
+     */
+    private String generateLogFileName(String sessionId) {
+        return getConfig().getLogDirectory() + "/" + LOG_FILE_PREFIX + sessionId + LOG_FILE_EXTENSION;
     }
     
     /**
@@ -211,6 +445,13 @@ public class PositionLogger {
         return isLogging;
     }
     
+    /**
+     * Get the current session ID
+     */
+    public String getCurrentSessionId() {
+        return currentSessionId;
+    }
+    
     /**
      * Get the current log file path
      */
@@ -229,8 +470,9 @@ public class PositionLogger {
      * Connect to WebSocket server
      */
     public boolean connectWebSocket(String serverAddress) {
-        config.setWebSocketServer(serverAddress);
-        config.setWebSocketEnabled(true);
+        getConfig().setWebSocketServer(serverAddress);
+        getConfig().setWebSocketEnabled(true);
+        webSocketManager.setReconnectDelay(getConfig().getReconnectDelay());
         return webSocketManager.connect(serverAddress);
     }
     
@@ -238,10 +480,18 @@ public class PositionLogger {
      * Disconnect from WebSocket server
      */
     public void disconnectWebSocket() {
-        config.setWebSocketEnabled(false);
+        getConfig().setWebSocketEnabled(false);
         webSocketManager.disconnect();
     }
     
+    /**
+     * Close the WebSocket connection when leaving a world, without changing whether it is enabled,
+     * so joining the next world connects again
+     */
+    public void closeWebSocket() {
+        webSocketManager.shutdown();
+    }
+    
     /**
      * Check if WebSocket is connected
      */
@@ -249,6 +499,13 @@ public class PositionLogger {
         return webSocketManager.isConnected();
     }
     
+    /**
+     * Get the number of samples dropped because too many were queued while the WebSocket was disconnected
+     */
+    public long getWebSocketDroppedDataCount() {
+        return webSocketManager.getDroppedDataCount();
+    }
+    
     /**
      * Get WebSocket server address
      */
@@ -257,9 +514,28 @@ public class PositionLogger {
     }
     
     /**
-     * Get the configuration object
+     * Get the live heatmap accumulator
+     */
+    public HeatmapAccumulator getHeatmapAccumulator() {
+        return heatmapAccumulator;
+    }
+    
+    /**
+     * Get the local live stream server
+     */
+    public LiveStreamServer getLiveStreamServer() {
+        return liveStreamServer;
+    }
+    
+    /**
+     * Get the configuration object, waiting for it to finish loading if needed
      */
     public TrackerConfig getConfig() {
-        return config;
+        CompletableFuture<TrackerConfig> loaded = config;
+        if (loaded == null) {
+            preload();
+            loaded = config;
+        }
+        return loaded.join();
     }
 }
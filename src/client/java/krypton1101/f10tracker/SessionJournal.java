@@ -0,0 +1,234 @@
+package krypton1101.f10tracker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write-ahead journal for one logging session. Every sample is appended here before it is buffered,
+ * and the journal is truncated whenever the buffer reaches the CSV file, so it only ever holds the
+ * tail of the session that is not in the CSV yet.
+ */
+public class SessionJournal implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-Journal");
+    private static final String JOURNAL_EXTENSION = ".journal";
+    private static final int CSV_TAIL_BYTES = 256;
+    private static final int CSV_FIELDS = 9;
+
+    private final Path journalFile;
+    private final FileChannel channel;
+
+    private SessionJournal(Path journalFile, FileChannel channel) {
+        this.journalFile = journalFile;
+        this.channel = channel;
+    }
+
+    /**
+     * Open the journal belonging to the given CSV log file
+     */
+    public static SessionJournal open(String logFile) throws IOException {
+        Path journalFile = Paths.get(logFile + JOURNAL_EXTENSION);
+        FileChannel channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new SessionJournal(journalFile, channel);
+    }
+
+    /**
+     * Append one CSV line. The write goes straight to the OS, so it survives a crash of the game.
+     */
+    public void append(String csvLine) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((csvLine + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Mark everything journaled so far as written to the CSV file
+     */
+    public void checkpoint() throws IOException {
+        channel.truncate(0);
+    }
+
+    /**
+     * Append the samples the CSV file is missing, to catch it up after a failed flush.
+     * Returns the number of samples written.
+     */
+    public int replay() throws IOException {
+        return appendMissing(journalFile);
+    }
+
+    /**
+     * Close the journal and delete it, the session has been fully written
+     */
+    public void complete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(journalFile);
+    }
+
+    /**
+     * Close the journal but keep it on disk so the next startup can recover it
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Append the unwritten tail of every journal left behind by an unclean exit to its CSV file
+     */
+    public static void recoverAll(Path logDir) {
+        if (!Files.isDirectory(logDir)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(logDir, "*" + JOURNAL_EXTENSION)) {
+            for (Path journalFile : journals) {
+                try {
+                    int recovered = recover(journalFile);
+                    LOGGER.info("Recovered {} samples from {}", recovered, journalFile.getFileName());
+                } catch (IOException e) {
+                    LOGGER.error("Failed to recover session journal {}", journalFile, e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to scan for session journals", e);
+        }
+    }
+
+    private static int recover(Path journalFile) throws IOException {
+        int recovered = appendMissing(journalFile);
+        Files.delete(journalFile);
+        return recovered;
+    }
+
+    /**
+     * Append every journaled sample newer than the last complete row of the CSV file to it
+     */
+    private static int appendMissing(Path journalFile) throws IOException {
+        String journalName = journalFile.getFileName().toString();
+        Path logFile = journalFile.resolveSibling(journalName.substring(0, journalName.length() - JOURNAL_EXTENSION.length()));
+
+        // Samples may already be in the CSV if the game died between the flush and the checkpoint
+        long lastWritten = repairTail(logFile);
+        StringBuilder missing = new StringBuilder();
+        int recovered = 0;
+        if (!Files.exists(logFile) || Files.size(logFile) == 0) {
+            missing.append(PositionLogger.CSV_HEADER);
+        }
+
+        // A line without its newline was torn by a crash during the append, the sample never reached the buffer
+        String journal = Files.readString(journalFile, StandardCharsets.UTF_8);
+        String[] lines = journal.substring(0, journal.lastIndexOf('\n') + 1).split("\n");
+        int skipped = 0;
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (countFields(line) != CSV_FIELDS) {
+                skipped++;
+                continue;
+            }
+            long timestamp = parseTimestamp(line);
+            if (timestamp > lastWritten) {
+                missing.append(line).append('\n');
+                recovered++;
+            }
+        }
+        if (skipped > 0) {
+            LOGGER.warn("Skipped {} malformed lines in {}", skipped, journalFile.getFileName());
+        }
+
+        if (missing.length() > 0) {
+            Files.writeString(logFile, missing, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return recovered;
+    }
+
+    /**
+     * Cut off a row torn by a crash during the flush and return the timestamp of the last complete row,
+     * looking only at the end of the file. The torn row is still in the journal and is appended again.
+     */
+    private static long repairTail(Path logFile) throws IOException {
+        if (!Files.exists(logFile)) {
+            return Long.MIN_VALUE;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "rw")) {
+            long length = file.length();
+            long end = findCompleteEnd(file, length);
+            if (end < length) {
+                LOGGER.warn("Removing {} bytes of a torn row from the end of {}", length - end, logFile.getFileName());
+                file.setLength(end);
+            }
+
+            long start = Math.max(0, end - CSV_TAIL_BYTES);
+            byte[] tail = new byte[(int) (end - start)];
+            file.seek(start);
+            file.readFully(tail);
+
+            String[] lines = new String(tail, StandardCharsets.UTF_8).split("\n");
+            for (int i = lines.length - 1; i >= 0; i--) {
+                long timestamp = parseTimestamp(lines[i]);
+                if (timestamp != Long.MIN_VALUE) {
+                    return timestamp;
+                }
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Find the length of the file up to and including its last newline, or 0 if it has none
+     */
+    private static long findCompleteEnd(RandomAccessFile file, long length) throws IOException {
+        byte[] chunk = new byte[CSV_TAIL_BYTES];
+        long end = length;
+        while (end > 0) {
+            long start = Math.max(0, end - CSV_TAIL_BYTES);
+            int size = (int) (end - start);
+            file.seek(start);
+            file.readFully(chunk, 0, size);
+            for (int i = size - 1; i >= 0; i--) {
+                if (chunk[i] == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private static int countFields(String csvLine) {
+        int fields = 1;
+        for (int i = 0; i < csvLine.length(); i++) {
+            if (csvLine.charAt(i) == ',') {
+                fields++;
+            }
+        }
+        return fields;
+    }
+
+    private static long parseTimestamp(String csvLine) {
+        int comma = csvLine.indexOf(',');
+        if (comma <= 0) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return Long.parseLong(csvLine.substring(0, comma));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
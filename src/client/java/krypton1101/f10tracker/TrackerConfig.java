@@ -13,7 +13,17 @@ public class TrackerConfig {
     private static final String CONFIG_FILE = "f10tracker_config.properties";
     private static final String DEFAULT_SERVER = "ws://localhost:8080/ws";
     private static final boolean DEFAULT_WEBSOCKET_ENABLED = false;
+    private static final long DEFAULT_RECONNECT_DELAY = 5000; // 5 seconds
     private static final long DEFAULT_LOG_INTERVAL = 500; // 0.5 second
+    private static final long DEFAULT_FLUSH_INTERVAL = 10000; // 10 seconds
+    private static final String DEFAULT_LOG_DIRECTORY = "f10tracker_logs";
+    private static final boolean DEFAULT_AUTO_START = true;
+    private static final boolean DEFAULT_LIVESTREAM_ENABLED = false;
+    private static final int DEFAULT_LIVESTREAM_PORT = 8765;
+    private static final String DEFAULT_LIVESTREAM_ALLOWED_ORIGIN = ""; // No cross-origin access
+    private static final boolean DEFAULT_HEATMAP_ENABLED = false;
+    private static final long DEFAULT_HEATMAP_SNAPSHOT_INTERVAL = 60000; // 1 minute
+    private static final String DEFAULT_HEATMAP_DIRECTORY = "f10tracker_heatmaps";
     
     private final Properties properties;
     private final File configFile;
@@ -24,6 +34,14 @@ public class TrackerConfig {
         loadConfig();
     }
     
+    /**
+     * Create a configuration held only in memory, changes are not saved to any file
+     */
+    public TrackerConfig(Properties properties) {
+        this.properties = properties;
+        this.configFile = null;
+    }
+    
     /**
      * Load configuration from file or create default
      */
@@ -46,7 +64,17 @@ public class TrackerConfig {
     private void createDefaultConfig() {
         properties.setProperty("websocket.enabled", String.valueOf(DEFAULT_WEBSOCKET_ENABLED));
         properties.setProperty("websocket.server", DEFAULT_SERVER);
+        properties.setProperty("websocket.reconnect_delay", String.valueOf(DEFAULT_RECONNECT_DELAY));
         properties.setProperty("logging.interval", String.valueOf(DEFAULT_LOG_INTERVAL));
+        properties.setProperty("logging.flush_interval", String.valueOf(DEFAULT_FLUSH_INTERVAL));
+        properties.setProperty("logging.directory", DEFAULT_LOG_DIRECTORY);
+        properties.setProperty("session.auto_start", String.valueOf(DEFAULT_AUTO_START));
+        properties.setProperty("livestream.enabled", String.valueOf(DEFAULT_LIVESTREAM_ENABLED));
+        properties.setProperty("livestream.port", String.valueOf(DEFAULT_LIVESTREAM_PORT));
+        properties.setProperty("livestream.allowed_origin", DEFAULT_LIVESTREAM_ALLOWED_ORIGIN);
+        properties.setProperty("heatmap.enabled", String.valueOf(DEFAULT_HEATMAP_ENABLED));
+        properties.setProperty("heatmap.snapshot_interval", String.valueOf(DEFAULT_HEATMAP_SNAPSHOT_INTERVAL));
+        properties.setProperty("heatmap.directory", DEFAULT_HEATMAP_DIRECTORY);
         saveConfig();
     }
     
@@ -54,6 +82,9 @@ public class TrackerConfig {
      * Save configuration to file
      */
     public void saveConfig() {
+        if (configFile == null) {
+            return;
+        }
         try (FileWriter writer = new FileWriter(configFile)) {
             properties.store(writer, "F10Tracker Configuration");
         } catch (IOException e) {
@@ -91,6 +122,13 @@ public class TrackerConfig {
         saveConfig();
     }
     
+    /**
+     * Get the delay in milliseconds before each WebSocket reconnection attempt
+     */
+    public long getReconnectDelay() {
+        return Long.parseLong(properties.getProperty("websocket.reconnect_delay", String.valueOf(DEFAULT_RECONNECT_DELAY)));
+    }
+    
     /**
      * Get logging interval in milliseconds
      */
@@ -105,4 +143,92 @@ public class TrackerConfig {
         properties.setProperty("logging.interval", String.valueOf(interval));
         saveConfig();
     }
+    
+    /**
+     * Get the interval in milliseconds at which buffered data is written to the log file
+     */
+    public long getFlushInterval() {
+        return Long.parseLong(properties.getProperty("logging.flush_interval", String.valueOf(DEFAULT_FLUSH_INTERVAL)));
+    }
+    
+    /**
+     * Get the directory CSV logs and their journals are written to
+     */
+    public String getLogDirectory() {
+        return properties.getProperty("logging.directory", DEFAULT_LOG_DIRECTORY);
+    }
+    
+    /**
+     * Check if logging starts automatically when joining a world
+     */
+    public boolean isAutoStartEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("session.auto_start", String.valueOf(DEFAULT_AUTO_START)));
+    }
+    
+    /**
+     * Enable or disable starting logging automatically when joining a world
+     */
+    public void setAutoStartEnabled(boolean enabled) {
+        properties.setProperty("session.auto_start", String.valueOf(enabled));
+        saveConfig();
+    }
+    
+    /**
+     * Check if the local live stream server is enabled
+     */
+    public boolean isLiveStreamEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("livestream.enabled", String.valueOf(DEFAULT_LIVESTREAM_ENABLED)));
+    }
+    
+    /**
+     * Enable or disable the local live stream server
+     */
+    public void setLiveStreamEnabled(boolean enabled) {
+        properties.setProperty("livestream.enabled", String.valueOf(enabled));
+        saveConfig();
+    }
+    
+    /**
+     * Get the localhost port of the live stream server
+     */
+    public int getLiveStreamPort() {
+        return Integer.parseInt(properties.getProperty("livestream.port", String.valueOf(DEFAULT_LIVESTREAM_PORT)));
+    }
+    
+    /**
+     * Get the origin, such as http://localhost:3000, whose web pages may read the live stream.
+     * Empty allows no other origin, * allows any website.
+     */
+    public String getLiveStreamAllowedOrigin() {
+        return properties.getProperty("livestream.allowed_origin", DEFAULT_LIVESTREAM_ALLOWED_ORIGIN).trim();
+    }
+    
+    /**
+     * Check if live heatmap aggregation is enabled
+     */
+    public boolean isHeatmapEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("heatmap.enabled", String.valueOf(DEFAULT_HEATMAP_ENABLED)));
+    }
+    
+    /**
+     * Enable or disable live heatmap aggregation
+     */
+    public void setHeatmapEnabled(boolean enabled) {
+        properties.setProperty("heatmap.enabled", String.valueOf(enabled));
+        saveConfig();
+    }
+    
+    /**
+     * Get heatmap snapshot interval in milliseconds
+     */
+    public long getHeatmapSnapshotInterval() {
+        return Long.parseLong(properties.getProperty("heatmap.snapshot_interval", String.valueOf(DEFAULT_HEATMAP_SNAPSHOT_INTERVAL)));
+    }
+    
+    /**
+     * Get the directory heatmap snapshots are written to
+     */
+    public String getHeatmapDirectory() {
+        return properties.getProperty("heatmap.directory", DEFAULT_HEATMAP_DIRECTORY);
+    }
 }
@@ -0,0 +1,130 @@
+package krypton1101.f10tracker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns every background thread used by the tracker. Timed and file work runs serially on a single
+ * virtual scheduler thread, blocking socket work runs on one virtual thread per task. Both executors
+ * are created on first use, so constructing this costs nothing during client startup.
+ */
+public class TrackerExecutor implements TrackerScheduler, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-Executor");
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService ioExecutor;
+    private boolean closed;
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        return scheduler().scheduleAtFixedRate(guard(task), initialDelayMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return scheduler().schedule(guard(task), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        scheduler().execute(guard(task));
+    }
+
+    @Override
+    public void executeIo(Runnable task) {
+        ioExecutor().execute(guard(task));
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return closed;
+    }
+
+    /**
+     * Stop accepting work, let pending work finish and interrupt anything still running after the timeout
+     */
+    @Override
+    public void close() {
+        ExecutorService[] executors;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            executors = new ExecutorService[] { scheduler, ioExecutor };
+        }
+
+        // Wait outside the lock so running tasks can still reach the executors and be rejected
+        for (ExecutorService executorService : executors) {
+            if (executorService != null) {
+                executorService.shutdown();
+            }
+        }
+        try {
+            for (ExecutorService executorService : executors) {
+                if (executorService != null && !executorService.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Tracker tasks did not finish in {}ms, interrupting", SHUTDOWN_TIMEOUT_MS);
+                    executorService.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            for (ExecutorService executorService : executors) {
+                if (executorService != null) {
+                    executorService.shutdownNow();
+                }
+            }
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.info("Tracker executor shut down");
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            checkNotClosed();
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                    Thread.ofVirtual().name("f10tracker-scheduler").factory());
+            // Delayed one-shot work such as timeouts and reconnects has no purpose once the tracker shuts down
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    private synchronized ExecutorService ioExecutor() {
+        if (ioExecutor == null) {
+            checkNotClosed();
+            ioExecutor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("f10tracker-io-", 0).factory());
+        }
+        return ioExecutor;
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new RejectedExecutionException("Tracker executor is shut down");
+        }
+    }
+
+    /**
+     * Log failures instead of letting them silently cancel periodic tasks
+     */
+    private static Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Tracker task failed", e);
+            }
+        };
+    }
+}
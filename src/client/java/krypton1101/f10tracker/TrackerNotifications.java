@@ -0,0 +1,96 @@
+package krypton1101.f10tracker;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.Text;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Queue for tracker status messages shown to the player. Messages can be posted from any thread,
+ * repeats of a pending message are counted instead of queued, and the client tick shows them
+ * at a rate limited by a token bucket.
+ */
+public class TrackerNotifications {
+    private static final String PREFIX = "[F10Tracker] ";
+    private static final int MAX_PENDING_MESSAGES = 16;
+    private static final int BUCKET_CAPACITY = 3;
+    private static final long REFILL_INTERVAL_MS = 2000; // One message every 2 seconds once the bucket is empty
+
+    private final Map<String, Integer> pending = new LinkedHashMap<>();
+    private int droppedCount = 0;
+
+    // Only touched on the client thread
+    private int tokens = BUCKET_CAPACITY;
+    private long lastRefill = System.currentTimeMillis();
+
+    /**
+     * Queue a message for the player, safe to call from any thread
+     */
+    public synchronized void post(String message) {
+        Integer count = pending.get(message);
+        if (count != null) {
+            pending.put(message, count + 1);
+        } else if (pending.size() < MAX_PENDING_MESSAGES) {
+            pending.put(message, 1);
+        } else {
+            droppedCount++;
+        }
+    }
+
+    /**
+     * Show as many pending messages as the rate limit allows. Must be called on the client thread.
+     */
+    public void drain(MinecraftClient client) {
+        if (client.player == null) {
+            return;
+        }
+
+        refillTokens();
+        while (tokens > 0) {
+            String message = poll();
+            if (message == null) {
+                return;
+            }
+            client.player.sendMessage(Text.literal(PREFIX + message), false);
+            tokens--;
+        }
+    }
+
+    /**
+     * Get the number of distinct messages waiting to be shown
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Take the oldest pending message, with its repeat count, or a summary of dropped messages
+     */
+    private synchronized String poll() {
+        Iterator<Map.Entry<String, Integer>> iterator = pending.entrySet().iterator();
+        if (iterator.hasNext()) {
+            Map.Entry<String, Integer> entry = iterator.next();
+            iterator.remove();
+            int count = entry.getValue();
+            return count > 1 ? entry.getKey() + " (x" + count + ")" : entry.getKey();
+        }
+
+        if (droppedCount > 0) {
+            String summary = droppedCount + " more tracker message(s) suppressed";
+            droppedCount = 0;
+            return summary;
+        }
+        return null;
+    }
+
+    private void refillTokens() {
+        long now = System.currentTimeMillis();
+        long refills = (now - lastRefill) / REFILL_INTERVAL_MS;
+        if (refills > 0) {
+            tokens = (int) Math.min(BUCKET_CAPACITY, tokens + refills);
+            lastRefill += refills * REFILL_INTERVAL_MS;
+        }
+    }
+}
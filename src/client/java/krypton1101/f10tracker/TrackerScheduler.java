@@ -0,0 +1,34 @@
+package krypton1101.f10tracker;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Runs the tracker's timed, file and socket work. Implemented by {@link TrackerExecutor} in the game,
+ * other implementations can drive the tracker with simulated time.
+ */
+public interface TrackerScheduler {
+    /**
+     * Run a task periodically on the scheduler thread
+     */
+    ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs);
+
+    /**
+     * Run a task once on the scheduler thread after a delay
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMs);
+
+    /**
+     * Run a task on the scheduler thread, after any task submitted before it
+     */
+    void execute(Runnable task);
+
+    /**
+     * Run a blocking task on its own thread
+     */
+    void executeIo(Runnable task);
+
+    /**
+     * Check if the scheduler has been shut down
+     */
+    boolean isShutdown();
+}
@@ -2,17 +2,19 @@ package krypton1101.f10tracker;
 
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketCloseCode;
 import com.neovisionaries.ws.client.WebSocketException;
 import com.neovisionaries.ws.client.WebSocketFactory;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.text.Text;
+import com.neovisionaries.ws.client.WebSocketFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages WebSocket connection to send PlayerData to a remote server
@@ -20,104 +22,184 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class WebSocketManager {
     private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-WebSocket");
     
-    private final MinecraftClient client;
+    private final TrackerNotifications notifications;
+    private final TrackerScheduler executor;
     private final BlockingQueue<PlayerData> dataQueue;
     private final AtomicBoolean isConnected;
     private final AtomicBoolean shouldReconnect;
+    private final AtomicLong droppedDataCount;
     
-    private WebSocket webSocket;
-    private String serverAddress;
-    private int reconnectAttempts;
+    private volatile WebSocket webSocket;
+    private volatile String serverAddress;
+    private volatile int reconnectAttempts;
+    private volatile long reconnectDelayMs = DEFAULT_RECONNECT_DELAY_MS;
+    private ScheduledFuture<?> reconnectTask;
     private static final int MAX_RECONNECT_ATTEMPTS = 5;
-    private static final long RECONNECT_DELAY_MS = 5000; // 5 seconds
+    private static final long DEFAULT_RECONNECT_DELAY_MS = 5000; // 5 seconds
+    private static final int MAX_QUEUED_DATA = 10000; // About 80 minutes at the default interval
     
-    public WebSocketManager(MinecraftClient client) {
-        this.client = client;
-        this.dataQueue = new LinkedBlockingQueue<>();
+    public WebSocketManager(TrackerNotifications notifications, TrackerScheduler executor) {
+        this.notifications = notifications;
+        this.executor = executor;
+        this.dataQueue = new LinkedBlockingQueue<>(MAX_QUEUED_DATA);
         this.isConnected = new AtomicBoolean(false);
         this.shouldReconnect = new AtomicBoolean(false);
+        this.droppedDataCount = new AtomicLong(0);
         this.reconnectAttempts = 0;
     }
     
     /**
-     * Connect to the specified WebSocket server
+     * Connect to the specified WebSocket server. The handshake runs on a virtual I/O thread,
+     * so this only reports whether the socket could be created.
      */
     public boolean connect(String serverAddress) {
         this.serverAddress = serverAddress;
         this.shouldReconnect.set(true);
+        cancelReconnect();
         
+        WebSocket socket;
         try {
-            webSocket = new WebSocketFactory()
+            socket = new WebSocketFactory()
                     .createSocket(serverAddress)
                     .addListener(new WebSocketAdapter() {
                         @Override
                         public void onConnected(WebSocket websocket, java.util.Map<String, java.util.List<String>> headers) {
+                            if (websocket != webSocket || !shouldReconnect.get()) {
+                                // The handshake finished after the socket was replaced or closed, release its threads
+                                release(websocket);
+                                return;
+                            }
                             LOGGER.info("Connected to WebSocket server: {}", serverAddress);
                             isConnected.set(true);
                             reconnectAttempts = 0;
                             sendMessageToPlayer("Connected to tracking server");
+                            processQueuedData();
                         }
                         
                         
                         @Override
                         public void onError(WebSocket websocket, WebSocketException cause) {
+                            if (websocket != webSocket) {
+                                // A replaced socket is being torn down, its errors are expected
+                                return;
+                            }
                             LOGGER.error("WebSocket error: {}", cause.getMessage(), cause);
                             isConnected.set(false);
                             sendMessageToPlayer("WebSocket connection error: " + cause.getMessage());
-                            
-                            if (shouldReconnect.get() && reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
-                                scheduleReconnect();
-                            } else if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
-                                sendMessageToPlayer("Failed to reconnect to tracking server after " + MAX_RECONNECT_ATTEMPTS + " attempts");
-                                shouldReconnect.set(false);
+                            handleConnectionFailure();
+                        }
+                        
+                        @Override
+                        public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                                                   WebSocketFrame clientCloseFrame, boolean closedByServer) {
+                            // Errors are handled in onError, this only covers a clean close by the server
+                            if (websocket != webSocket || !closedByServer || !isConnected.getAndSet(false)) {
+                                return;
                             }
+                            LOGGER.info("WebSocket server closed the connection");
+                            sendMessageToPlayer("Tracking server closed the connection");
+                            handleConnectionFailure();
                         }
                         
                         @Override
                         public void onTextMessage(WebSocket websocket, String text) {
                             LOGGER.debug("Received message from server: {}", text);
                         }
-                    })
-                    .connect();
-            
-            return true;
-        } catch (IOException | WebSocketException e) {
+                    });
+        } catch (IOException e) {
             LOGGER.error("Failed to connect to WebSocket server: {}", e.getMessage(), e);
             sendMessageToPlayer("Failed to connect to tracking server: " + e.getMessage());
             return false;
         }
+        
+        // Release the reader and writer threads of any previous socket before replacing it. A socket still
+        // in its handshake ignores this, onConnected disconnects it once the handshake completes.
+        WebSocket previous = webSocket;
+        webSocket = socket;
+        if (previous != null) {
+            release(previous);
+        }
+        
+        executor.executeIo(() -> {
+            try {
+                socket.connect();
+            } catch (WebSocketException e) {
+                if (socket != webSocket) {
+                    return;
+                }
+                LOGGER.error("Failed to connect to WebSocket server: {}", e.getMessage(), e);
+                sendMessageToPlayer("Failed to connect to tracking server: " + e.getMessage());
+                handleConnectionFailure();
+            }
+        });
+        
+        return true;
     }
     
     /**
      * Disconnect from the WebSocket server
      */
     public void disconnect() {
+        closeConnection();
+        
+        LOGGER.info("Disconnected from WebSocket server");
+        sendMessageToPlayer("Disconnected from tracking server");
+    }
+    
+    /**
+     * Close the connection and cancel any pending reconnect without notifying the player
+     */
+    public void shutdown() {
+        closeConnection();
+        dataQueue.clear();
+    }
+    
+    private synchronized void closeConnection() {
         shouldReconnect.set(false);
         isConnected.set(false);
         
-        if (webSocket != null && webSocket.isOpen()) {
-            webSocket.disconnect();
-        }
+        cancelReconnect();
         
-        LOGGER.info("Disconnected from WebSocket server");
-        sendMessageToPlayer("Disconnected from tracking server");
+        // A socket still in its handshake is disconnected by onConnected since shouldReconnect is now false
+        WebSocket socket = webSocket;
+        webSocket = null;
+        if (socket != null) {
+            socket.disconnect();
+        }
+    }
+    
+    /**
+     * Close a socket that is being replaced without waiting for the server's close frame. After a dropped
+     * connection nv-websocket starts a close timer thread on disconnect that only ends once the close delay
+     * has passed and the socket is garbage collected.
+     */
+    private static void release(WebSocket socket) {
+        socket.disconnect(WebSocketCloseCode.NORMAL, null, 0);
+    }
+    
+    private synchronized void cancelReconnect() {
+        if (reconnectTask != null) {
+            reconnectTask.cancel(false);
+            reconnectTask = null;
+        }
     }
     
     /**
      * Send PlayerData to the server
      */
     public void sendPlayerData(PlayerData data) {
-        if (!isConnected.get() || webSocket == null || !webSocket.isOpen()) {
+        WebSocket socket = webSocket;
+        if (!isConnected.get() || socket == null || !socket.isOpen()) {
             // Queue data for later sending if not connected
             if (shouldReconnect.get()) {
-                dataQueue.offer(data);
+                queueData(data);
             }
             return;
         }
         
         try {
-            String jsonData = dataToJson(data);
-            webSocket.sendText(jsonData);
+            String jsonData = data.toJson();
+            socket.sendText(jsonData);
             LOGGER.debug("Sent player data to server: {}", data);
         } catch (Exception e) {
             LOGGER.error("Failed to send player data: {}", e.getMessage(), e);
@@ -131,61 +213,75 @@ public class WebSocketManager {
     public void processQueuedData() {
         if (!isConnected.get()) return;
         
+        // Only send what was queued on entry, data requeued by a failed send waits for the next connection
         PlayerData data;
-        while ((data = dataQueue.poll()) != null) {
+        for (int remaining = dataQueue.size(); remaining > 0 && (data = dataQueue.poll()) != null; remaining--) {
             sendPlayerData(data);
         }
     }
     
+    /**
+     * Queue data for later sending, dropping the oldest sample once the queue is full
+     */
+    private void queueData(PlayerData data) {
+        while (!dataQueue.offer(data)) {
+            if (dataQueue.poll() != null) {
+                droppedDataCount.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Retry after a connection error or failed handshake, until the attempts run out
+     */
+    private void handleConnectionFailure() {
+        if (shouldReconnect.get() && reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
+            scheduleReconnect();
+        } else if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
+            sendMessageToPlayer("Failed to reconnect to tracking server after " + MAX_RECONNECT_ATTEMPTS + " attempts");
+            shouldReconnect.set(false);
+        }
+    }
+    
     /**
      * Schedule a reconnection attempt
      */
-    private void scheduleReconnect() {
+    private synchronized void scheduleReconnect() {
+        if (executor.isShutdown() || (reconnectTask != null && !reconnectTask.isDone())) {
+            return;
+        }
+        
         reconnectAttempts++;
-        LOGGER.info("Scheduling reconnection attempt {} in {}ms", reconnectAttempts, RECONNECT_DELAY_MS);
+        LOGGER.info("Scheduling reconnection attempt {} in {}ms", reconnectAttempts, reconnectDelayMs);
         
-        new Thread(() -> {
-            try {
-                Thread.sleep(RECONNECT_DELAY_MS);
-                if (shouldReconnect.get()) {
-                    LOGGER.info("Attempting to reconnect to WebSocket server...");
-                    connect(serverAddress);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                LOGGER.warn("Reconnection thread interrupted");
+        reconnectTask = executor.schedule(() -> {
+            if (shouldReconnect.get()) {
+                LOGGER.info("Attempting to reconnect to WebSocket server...");
+                connect(serverAddress);
             }
-        }).start();
+        }, reconnectDelayMs);
     }
     
     /**
-     * Convert PlayerData to JSON format
+     * Queue a message for the player, it is shown on the client thread
      */
-    private String dataToJson(PlayerData data) {
-        return String.format(
-            "{\"UUID\":\"%s\",\"timestamp\":%d,\"position\":{\"x\":%.6f,\"y\":%.6f,\"z\":%.6f},\"velocity\":{\"x\":%.6f,\"y\":%.6f,\"z\":%.6f},\"yaw\":%.3f,\"pitch\":%.3f}",
-            data.getPlayerUuid(),
-            data.getTimestamp(),
-            data.getPosition().x, data.getPosition().y, data.getPosition().z,
-            data.getVelocity().x, data.getVelocity().y, data.getVelocity().z,
-            data.getYaw(), data.getPitch()
-        );
+    private void sendMessageToPlayer(String message) {
+        notifications.post(message);
     }
     
     /**
-     * Send a message to the player
+     * Set the delay in milliseconds before each reconnection attempt
      */
-    private void sendMessageToPlayer(String message) {
-        if (client.player != null) {
-            client.player.sendMessage(Text.literal("[F10Tracker] " + message), false);
-        }
+    public void setReconnectDelay(long delayMs) {
+        this.reconnectDelayMs = delayMs;
     }
     
     /**
      * Check if connected to the server
      */
     public boolean isConnected() {
-        return isConnected.get() && webSocket != null && webSocket.isOpen();
+        WebSocket socket = webSocket;
+        return isConnected.get() && socket != null && socket.isOpen();
     }
     
     /**
@@ -201,4 +297,11 @@ public class WebSocketManager {
     public int getQueuedDataCount() {
         return dataQueue.size();
     }
+    
+    /**
+     * Get the number of queued data items dropped because the queue was full
+     */
+    public long getDroppedDataCount() {
+        return droppedDataCount.get();
+    }
 }
@@ -0,0 +1,42 @@
+package krypton1101.f10tracker;
+
+import net.minecraft.util.math.Vec3d;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Player walking in circles in one world, counting every sample taken
+ */
+class FakePlayerSource implements PlayerSource {
+    private static final UUID PLAYER_UUID = UUID.nameUUIDFromBytes("f10tracker-soak".getBytes());
+    private static final double RADIUS = 512;
+    private static final double STEP_RADIANS = 0.001;
+
+    private final AtomicLong samples = new AtomicLong();
+
+    @Override
+    public PlayerData sample(long timestamp) {
+        double angle = samples.getAndIncrement() * STEP_RADIANS;
+        Vec3d position = new Vec3d(Math.cos(angle) * RADIUS, 64, Math.sin(angle) * RADIUS);
+        Vec3d velocity = new Vec3d(-Math.sin(angle), 0, Math.cos(angle));
+        return new PlayerData(timestamp, position, velocity, (float) Math.toDegrees(angle) % 360, 0, PLAYER_UUID);
+    }
+
+    @Override
+    public String getDimension() {
+        return "minecraft:overworld";
+    }
+
+    @Override
+    public String getWorldId() {
+        return "soak_world";
+    }
+
+    /**
+     * Get the number of samples taken so far
+     */
+    long getSampleCount() {
+        return samples.get();
+    }
+}
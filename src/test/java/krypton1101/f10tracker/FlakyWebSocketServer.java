@@ -0,0 +1,247 @@
+package krypton1101.f10tracker;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal localhost WebSocket server that records which samples it received and drops every
+ * connection without a close frame after a fixed number of frames, like a crashing tracking server.
+ */
+class FlakyWebSocketServer implements AutoCloseable {
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final Pattern KEY_HEADER = Pattern.compile("(?im)^Sec-WebSocket-Key:\\s*(\\S+)\\s*$");
+    private static final Pattern TIMESTAMP = Pattern.compile("\"timestamp\":(\\d+)");
+    private static final int MAX_REQUEST_BYTES = 8192;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final int framesPerConnection;
+    private final long firstTimestamp;
+    private final long intervalMs;
+
+    // Bit i is set once the sample taken at firstTimestamp + i * intervalMs arrived
+    private final BitSet received = new BitSet();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger resets = new AtomicInteger();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final AtomicInteger unexpected = new AtomicInteger();
+
+    FlakyWebSocketServer(int framesPerConnection, long firstTimestamp, long intervalMs) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.framesPerConnection = framesPerConnection;
+        this.firstTimestamp = firstTimestamp;
+        this.intervalMs = intervalMs;
+        executor.execute(this::acceptLoop);
+    }
+
+    /**
+     * Get the address the tracker should connect to
+     */
+    String getAddress() {
+        return "ws://127.0.0.1:" + serverSocket.getLocalPort() + "/ws";
+    }
+
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Get the number of connections dropped so far, counted once the reset has been sent
+     */
+    int getResetCount() {
+        return resets.get();
+    }
+
+    int getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * Get the number of frames that were not a sample on the expected time grid
+     */
+    int getUnexpectedCount() {
+        return unexpected.get();
+    }
+
+    /**
+     * Check whether the sample taken at the given time arrived
+     */
+    boolean hasReceived(long timestamp) {
+        synchronized (received) {
+            return received.get((int) ((timestamp - firstTimestamp) / intervalMs));
+        }
+    }
+
+    int getReceivedCount() {
+        synchronized (received) {
+            return received.cardinality();
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+            handshake(in, out);
+            connections.incrementAndGet();
+
+            int frames = 0;
+            while (frames < framesPerConnection) {
+                if (!readFrame(in, out)) {
+                    return;
+                }
+                frames++;
+            }
+
+            // Reset the connection instead of closing it cleanly
+            socket.setSoLinger(true, 0);
+            socket.close();
+            resets.incrementAndGet();
+        } catch (IOException e) {
+            // The client went away, nothing to record
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private void handshake(DataInputStream in, OutputStream out) throws IOException {
+        StringBuilder request = new StringBuilder();
+        while (request.indexOf("\r\n\r\n") < 0) {
+            int b = in.read();
+            if (b < 0 || request.length() >= MAX_REQUEST_BYTES) {
+                throw new EOFException("Incomplete handshake");
+            }
+            request.append((char) b);
+        }
+
+        Matcher key = KEY_HEADER.matcher(request);
+        if (!key.find()) {
+            throw new IOException("Missing Sec-WebSocket-Key");
+        }
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(key.group(1)) + "\r\n"
+                + "\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Read one client frame, returns false once the client closed the connection
+     */
+    private boolean readFrame(DataInputStream in, OutputStream out) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        int second = in.readUnsignedByte();
+        int opcode = first & 0x0F;
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        byte[] mask = new byte[4];
+        if ((second & 0x80) != 0) {
+            in.readFully(mask);
+        }
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] ^= mask[i & 3];
+        }
+
+        switch (opcode) {
+            case 0x1 -> record(new String(payload, StandardCharsets.UTF_8));
+            case 0x8 -> {
+                out.write(new byte[] { (byte) 0x88, 0 });
+                out.flush();
+                return false;
+            }
+            case 0x9 -> {
+                out.write(new byte[] { (byte) 0x8A, (byte) payload.length });
+                out.write(payload);
+                out.flush();
+            }
+            default -> {
+                // Pongs and continuation frames are not sent by the tracker
+            }
+        }
+        return true;
+    }
+
+    private void record(String message) {
+        Matcher timestamp = TIMESTAMP.matcher(message);
+        if (!timestamp.find()) {
+            unexpected.incrementAndGet();
+            return;
+        }
+
+        long offset = Long.parseLong(timestamp.group(1)) - firstTimestamp;
+        if (offset < 0 || offset % intervalMs != 0) {
+            unexpected.incrementAndGet();
+            return;
+        }
+        int index = (int) (offset / intervalMs);
+        synchronized (received) {
+            if (received.get(index)) {
+                duplicates.incrementAndGet();
+            } else {
+                received.set(index);
+            }
+        }
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
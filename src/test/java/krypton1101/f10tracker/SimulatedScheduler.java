@@ -0,0 +1,199 @@
+package krypton1101.f10tracker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler and clock running on simulated time. Timed tasks run on the thread calling advance,
+ * blocking tasks run on real virtual threads like in the game.
+ */
+class SimulatedScheduler implements TrackerScheduler, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("F10Tracker-SimulatedScheduler");
+
+    private final PriorityQueue<SimulatedTask> queue = new PriorityQueue<>(
+            Comparator.comparingLong((SimulatedTask task) -> task.time).thenComparingLong(task -> task.sequence));
+    private final ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final long startMillis;
+
+    private volatile long now;
+    private long sequence;
+    private boolean closed;
+
+    SimulatedScheduler(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Get a UTC clock showing the simulated time
+     */
+    Clock clock() {
+        return new SimulatedClock(ZoneOffset.UTC);
+    }
+
+    /**
+     * Run every task due within the given time in order, moving the clock to each task's time
+     */
+    void advance(long ms) {
+        long target = now + ms;
+        while (true) {
+            SimulatedTask task;
+            synchronized (this) {
+                task = queue.peek();
+                if (task == null || task.time > target) {
+                    break;
+                }
+                queue.poll();
+                now = task.time;
+            }
+
+            // Run outside the lock, I/O threads schedule work concurrently
+            if (task.runOnce()) {
+                synchronized (this) {
+                    task.time += task.period;
+                    task.sequence = sequence++;
+                    queue.add(task);
+                }
+            }
+        }
+        now = target;
+    }
+
+    /**
+     * Get the number of tasks that threw instead of completing
+     */
+    int getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        return enqueue(task, now + initialDelayMs, periodMs);
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return enqueue(task, now + delayMs, 0);
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        enqueue(task, now, 0);
+    }
+
+    @Override
+    public void executeIo(Runnable task) {
+        ioExecutor.execute(guard(task));
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+        ioExecutor.shutdownNow();
+        ioExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private SimulatedTask enqueue(Runnable task, long time, long period) {
+        SimulatedTask scheduled = new SimulatedTask(guard(task), time, period);
+        scheduled.sequence = sequence++;
+        queue.add(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * Count failures instead of letting them cancel periodic tasks, like TrackerExecutor
+     */
+    private Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                LOGGER.error("Simulated task failed", e);
+            }
+        };
+    }
+
+    private final class SimulatedTask extends FutureTask<Void> implements ScheduledFuture<Void> {
+        private final long period;
+        private long time;
+        private long sequence;
+
+        private SimulatedTask(Runnable task, long time, long period) {
+            super(task, null);
+            this.time = time;
+            this.period = period;
+        }
+
+        /**
+         * Run the task and tell whether it should run again
+         */
+        private boolean runOnce() {
+            if (period > 0) {
+                return runAndReset();
+            }
+            run();
+            return false;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - now, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private final class SimulatedClock extends Clock {
+        private final ZoneId zone;
+
+        private SimulatedClock(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return zone.equals(this.zone) ? this : new SimulatedClock(zone);
+        }
+
+        @Override
+        public long millis() {
+            return startMillis + now;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package krypton1101.f10tracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a full logging session over many simulated hours against a tracking server that keeps
+ * dropping the connection, and checks that memory and threads stay flat, that no sample is
+ * duplicated and that only samples already on the wire when a connection dropped are lost.
+ * Set the f10tracker.soak.hours system property to change the simulated duration.
+ */
+class TrackerSoakTest {
+    private static final long SIMULATED_HOURS = Long.getLong("f10tracker.soak.hours", 24);
+    private static final long START_MILLIS = 1_750_000_000_000L;
+    private static final long LOG_INTERVAL_MS = 500;
+    private static final long STEP_MS = LOG_INTERVAL_MS; // One sample per step
+    private static final long HOUR_MS = 3_600_000;
+    private static final long RECONNECT_DELAY_MS = 2000;
+    private static final int FRAMES_PER_CONNECTION = 2000; // The server drops every connection after about 17 minutes
+    private static final long MAX_HEAP_GROWTH_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_EXTRA_THREADS = 8;
+    private static final int MAX_IN_FLIGHT_PER_RESET = 5; // Sent before the tracker noticed a reset
+    private static final long FRAME_WAIT_MS = 1000;
+    private static final long DISCONNECT_WAIT_MS = 5000;
+    private static final long DRAIN_WAIT_MS = 5000;
+    private static final long THREAD_EXIT_WAIT_MS = 5000;
+    private static final long AWAIT_POLL_NANOS = 50_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void soakAgainstFlakyServer() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        FakePlayerSource playerSource = new FakePlayerSource();
+        PositionLogger positionLogger;
+        long baselineHeap = 0;
+        long maxHeap = 0;
+        int baselineThreads = threads.getThreadCount();
+        int maxThreads = baselineThreads;
+        int handledResets = 0;
+
+        try (FlakyWebSocketServer server = new FlakyWebSocketServer(FRAMES_PER_CONNECTION, START_MILLIS, LOG_INTERVAL_MS);
+             SimulatedScheduler scheduler = new SimulatedScheduler(START_MILLIS)) {
+            Properties properties = new Properties();
+            properties.setProperty("logging.interval", String.valueOf(LOG_INTERVAL_MS));
+            properties.setProperty("logging.directory", tempDir.resolve("logs").toString());
+            properties.setProperty("heatmap.enabled", "true");
+            properties.setProperty("heatmap.directory", tempDir.resolve("heatmaps").toString());
+            properties.setProperty("websocket.enabled", "true");
+            properties.setProperty("websocket.server", server.getAddress());
+            properties.setProperty("websocket.reconnect_delay", String.valueOf(RECONNECT_DELAY_MS));
+
+            positionLogger = new PositionLogger(playerSource, scheduler.clock(), scheduler,
+                    () -> new TrackerConfig(properties), new TrackerNotifications());
+            positionLogger.connectWebSocketIfEnabled();
+            positionLogger.startLogging(positionLogger.getConfig().getLogInterval());
+
+            for (long elapsed = STEP_MS; elapsed <= SIMULATED_HOURS * HOUR_MS; elapsed += STEP_MS) {
+                scheduler.advance(STEP_MS);
+                if (positionLogger.isWebSocketConnected()) {
+                    // Let the server read the new sample, so it resets the connection before the next one is sent
+                    long latest = START_MILLIS + (playerSource.getSampleCount() - 1) * LOG_INTERVAL_MS;
+                    int resets = handledResets;
+                    awaitReal(() -> server.hasReceived(latest) || server.getResetCount() > resets, FRAME_WAIT_MS);
+                }
+                if (server.getResetCount() > handledResets) {
+                    // Hold simulated time until the tracker sees the reset, so later samples are queued instead of lost
+                    assertTrue(awaitReal(() -> !positionLogger.isWebSocketConnected(), DISCONNECT_WAIT_MS),
+                            "the tracker did not notice the dropped connection");
+                    handledResets = server.getResetCount();
+                }
+
+                maxThreads = Math.max(maxThreads, threads.getThreadCount());
+                if (elapsed % HOUR_MS == 0) {
+                    long heap = usedHeapAfterGc();
+                    if (elapsed == HOUR_MS) {
+                        // Measure from the end of the first hour, once classes are loaded and buffers have grown
+                        baselineHeap = heap;
+                        baselineThreads = threads.getThreadCount();
+                        maxThreads = baselineThreads;
+                    }
+                    maxHeap = Math.max(maxHeap, heap);
+                }
+            }
+
+            // Let a pending reconnect send the queued samples before closing the connection
+            positionLogger.stopLogging();
+            scheduler.advance(RECONNECT_DELAY_MS);
+            long samples = playerSource.getSampleCount();
+            awaitReal(() -> server.getReceivedCount() + positionLogger.getWebSocketDroppedDataCount() >= samples, DRAIN_WAIT_MS);
+            positionLogger.shutdown();
+            scheduler.advance(0);
+
+            assertEquals(0, scheduler.getFailureCount(), "scheduled tasks failed");
+            assertEquals(0, server.getDuplicateCount(), "samples sent to the server more than once");
+            assertEquals(0, server.getUnexpectedCount(), "frames that were not samples on the time grid");
+            assertTrue(server.getConnectionCount() > 1, "the tracker never reconnected");
+            long inFlight = samples - server.getReceivedCount() - positionLogger.getWebSocketDroppedDataCount();
+            assertTrue(inFlight >= 0 && inFlight <= (long) server.getResetCount() * MAX_IN_FLIGHT_PER_RESET,
+                    inFlight + " of " + samples + " samples lost in flight over " + server.getResetCount() + " resets, "
+                            + server.getReceivedCount() + " received, " + positionLogger.getWebSocketDroppedDataCount() + " dropped");
+        }
+
+        assertCsvComplete(Paths.get(positionLogger.getCurrentLogFile()), playerSource.getSampleCount());
+        assertFalse(Files.exists(Paths.get(positionLogger.getCurrentLogFile() + ".journal")), "journal left behind");
+
+        if (SIMULATED_HOURS > 1) {
+            assertTrue(maxHeap - baselineHeap < MAX_HEAP_GROWTH_BYTES,
+                    "heap grew by " + (maxHeap - baselineHeap) / 1024 + " KiB after the first hour");
+        }
+        assertTrue(maxThreads <= baselineThreads + MAX_EXTRA_THREADS,
+                "platform threads peaked at " + maxThreads + ", baseline " + baselineThreads);
+        int finalBaseline = baselineThreads;
+        assertTrue(awaitReal(() -> threads.getThreadCount() <= finalBaseline, THREAD_EXIT_WAIT_MS),
+                "platform threads left running after shutdown: " + threads.getThreadCount() + ", baseline " + baselineThreads);
+    }
+
+    /**
+     * Check that the CSV holds exactly one row for every sample, in order and without gaps
+     */
+    private static void assertCsvComplete(Path logFile, long sampleCount) throws IOException {
+        List<String> lines = Files.readAllLines(logFile);
+        assertEquals(PositionLogger.CSV_HEADER.trim(), lines.get(0));
+        assertEquals(sampleCount, lines.size() - 1, "CSV rows");
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            long timestamp = Long.parseLong(line.substring(0, line.indexOf(',')));
+            assertEquals(START_MILLIS + (i - 1) * LOG_INTERVAL_MS, timestamp, "timestamp of CSV row " + i);
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Give work on real threads, such as a WebSocket handshake, a moment to catch up with simulated time
+     */
+    private static boolean awaitReal(BooleanSupplier condition, long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(AWAIT_POLL_NANOS);
+        }
+        return true;
+    }
+}